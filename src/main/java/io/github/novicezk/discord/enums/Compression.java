@@ -3,7 +3,8 @@ package io.github.novicezk.discord.enums;
 
 public enum Compression {
 	NONE(""),
-	ZLIB("zlib-stream");
+	ZLIB("zlib-stream"),
+	PERMESSAGE_DEFLATE("");
 
 	private final String key;
 
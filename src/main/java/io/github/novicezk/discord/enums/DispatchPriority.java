@@ -0,0 +1,8 @@
+package io.github.novicezk.discord.enums;
+
+
+public enum DispatchPriority {
+	HIGH,
+	NORMAL,
+	LOW
+}
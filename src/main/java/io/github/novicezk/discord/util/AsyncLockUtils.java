@@ -2,13 +2,11 @@ package io.github.novicezk.discord.util;
 
 import cn.hutool.cache.CacheUtil;
 import cn.hutool.cache.impl.TimedCache;
-import cn.hutool.core.thread.ThreadUtil;
 
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -30,22 +28,12 @@ public final class AsyncLockUtils {
 			}
 			lockObject = LOCK_MAP.get(key);
 		}
-		Future<?> future = ThreadUtil.execAsync(() -> {
-			try {
-				lockObject.sleep();
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-			}
-		});
 		try {
-			future.get(duration.toMillis(), TimeUnit.MILLISECONDS);
+			if (!lockObject.await(duration)) {
+				throw new TimeoutException("Wait Timeout");
+			}
 		} catch (InterruptedException e) {
 			Thread.currentThread().interrupt();
-		} catch (ExecutionException e) {
-			// do nothing
-		} catch (TimeoutException e) {
-			future.cancel(true);
-			throw new TimeoutException("Wait Timeout");
 		} finally {
 			LOCK_MAP.remove(lockObject.getId());
 		}
@@ -56,7 +44,7 @@ public final class AsyncLockUtils {
 		private String id;
 
 		private Map<String, Object> properties;
-		private final transient Object lock = new Object();
+		private final transient CountDownLatch latch = new CountDownLatch(1);
 
 		public LockObject(String id) {
 			this.id = id;
@@ -67,15 +55,15 @@ public final class AsyncLockUtils {
 		}
 
 		public void sleep() throws InterruptedException {
-			synchronized (this.lock) {
-				this.lock.wait();
-			}
+			this.latch.await();
+		}
+
+		public boolean await(Duration duration) throws InterruptedException {
+			return this.latch.await(duration.toMillis(), TimeUnit.MILLISECONDS);
 		}
 
 		public void awake() {
-			synchronized (this.lock) {
-				this.lock.notifyAll();
-			}
+			this.latch.countDown();
 		}
 
 		public LockObject setProperty(String name, Object value) {
@@ -0,0 +1,37 @@
+package io.github.novicezk.discord.util;
+
+import cn.hutool.core.thread.ThreadUtil;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 线程创建入口, JDK 21+ 下由 META-INF/versions/21 中的实现替换为虚拟线程.
+ */
+public final class ExecutorUtils {
+	private static final ExecutorService DEFAULT_EXECUTOR = newExecutor("wss-task-");
+	private static final ExecutorService CONNECT_EXECUTOR = Executors.newCachedThreadPool(ThreadUtil.newNamedThreadFactory("wss-connect-", false));
+
+	private ExecutorUtils() {
+	}
+
+	public static ExecutorService defaultExecutor() {
+		return DEFAULT_EXECUTOR;
+	}
+
+	/**
+	 * 非守护的平台线程, websocket 的读写线程继承建立连接线程的 daemon 属性.
+	 */
+	public static ExecutorService connectExecutor() {
+		return CONNECT_EXECUTOR;
+	}
+
+	public static ThreadFactory newThreadFactory(String prefix) {
+		return ThreadUtil.newNamedThreadFactory(prefix, false);
+	}
+
+	public static ExecutorService newExecutor(String prefix) {
+		return Executors.newCachedThreadPool(newThreadFactory(prefix));
+	}
+}
@@ -0,0 +1,142 @@
+package io.github.novicezk.discord.websocket;
+
+import io.github.novicezk.discord.enums.DispatchPriority;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按 dispatch 类型的优先级在过载时丢弃消息, 在 JSON 解析前判断.
+ * 每个优先级可设置每秒消息数阈值, 超过后该优先级的消息被丢弃, HIGH 永不丢弃.
+ */
+public class DispatchShedder {
+	private static final long WINDOW_MILLIS = 1000;
+
+	private final Map<String, DispatchPriority> priorities = new ConcurrentHashMap<>();
+	private final Map<DispatchPriority, Integer> thresholds = new EnumMap<>(DispatchPriority.class);
+	private final Map<String, LongAdder> shedCounts = new ConcurrentHashMap<>();
+	private long windowStart = 0;
+	private int windowCount = 0;
+	private int lastWindowCount = 0;
+	private volatile boolean enabled = false;
+
+	public DispatchShedder() {
+		this.priorities.put("READY", DispatchPriority.HIGH);
+		this.priorities.put("RESUMED", DispatchPriority.HIGH);
+		this.priorities.put("MESSAGE_CREATE", DispatchPriority.HIGH);
+		this.priorities.put("PRESENCE_UPDATE", DispatchPriority.LOW);
+		this.priorities.put("TYPING_START", DispatchPriority.LOW);
+	}
+
+	public DispatchShedder setPriority(String type, DispatchPriority priority) {
+		if (!"READY".equals(type) && !"RESUMED".equals(type)) {
+			this.priorities.put(type, priority);
+		}
+		return this;
+	}
+
+	public DispatchPriority getPriority(String type) {
+		return this.priorities.getOrDefault(type, DispatchPriority.NORMAL);
+	}
+
+	/**
+	 * @param eventsPerSecond 每秒 dispatch 数超过该值时丢弃此优先级的消息, 小于等于0表示不丢弃
+	 */
+	public synchronized DispatchShedder setThreshold(DispatchPriority priority, int eventsPerSecond) {
+		if (priority != DispatchPriority.HIGH) {
+			this.thresholds.put(priority, eventsPerSecond);
+			this.enabled = this.thresholds.values().stream().anyMatch(threshold -> threshold > 0);
+		}
+		return this;
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public Map<String, Long> getShedCounts() {
+		Map<String, Long> counts = new HashMap<>();
+		this.shedCounts.forEach((type, count) -> counts.put(type, count.sum()));
+		return Collections.unmodifiableMap(counts);
+	}
+
+	public long getShedTotal() {
+		return this.shedCounts.values().stream().mapToLong(LongAdder::sum).sum();
+	}
+
+	boolean shouldShed(String type) {
+		return shouldShed(type, System.currentTimeMillis());
+	}
+
+	synchronized boolean shouldShed(String type, long now) {
+		if (now - this.windowStart >= WINDOW_MILLIS) {
+			this.lastWindowCount = now - this.windowStart < WINDOW_MILLIS * 2 ? this.windowCount : 0;
+			this.windowStart = now;
+			this.windowCount = 0;
+		}
+		this.windowCount++;
+		int threshold = this.thresholds.getOrDefault(getPriority(type), 0);
+		if (threshold <= 0 || Math.max(this.windowCount, this.lastWindowCount) <= threshold) {
+			return false;
+		}
+		this.shedCounts.computeIfAbsent(type, k -> new LongAdder()).increment();
+		return true;
+	}
+
+	/**
+	 * 在 JSON 解析前读取 dispatch 类型. 依赖 gateway 的字段顺序 {"t":..,"s":..,"op":..,"d":{..}},
+	 * 只在 "d" 之前查找, 允许冒号前后有空白; 找不到时返回 null, 该消息不会被丢弃.
+	 */
+	static String peekType(String json) {
+		int start = valueIndex(json, "\"t\"");
+		if (start < 0 || start >= json.length() || json.charAt(start) != '"') {
+			return null;
+		}
+		int quote = json.indexOf('"', start + 1);
+		return quote < 0 ? null : json.substring(start + 1, quote);
+	}
+
+	/**
+	 * 在 JSON 解析前读取 sequence, 规则同 {@link #peekType(String)}.
+	 */
+	static Long peekSequence(String json) {
+		int start = valueIndex(json, "\"s\"");
+		if (start < 0) {
+			return null;
+		}
+		int i = start;
+		while (i < json.length() && Character.isDigit(json.charAt(i))) {
+			i++;
+		}
+		return i == start ? null : Long.valueOf(json.substring(start, i));
+	}
+
+	private static int valueIndex(String json, String key) {
+		int dataIndex = keyIndex(json, "\"d\"", json.length());
+		int index = keyIndex(json, key, dataIndex < 0 ? json.length() : dataIndex);
+		return index < 0 ? -1 : skipWhitespace(json, json.indexOf(':', index) + 1);
+	}
+
+	private static int keyIndex(String json, String key, int end) {
+		int index = json.indexOf(key);
+		while (index >= 0 && index < end) {
+			int colon = skipWhitespace(json, index + key.length());
+			if (colon < json.length() && json.charAt(colon) == ':') {
+				return index;
+			}
+			index = json.indexOf(key, index + 1);
+		}
+		return -1;
+	}
+
+	private static int skipWhitespace(String json, int index) {
+		while (index < json.length() && Character.isWhitespace(json.charAt(index))) {
+			index++;
+		}
+		return index;
+	}
+}
@@ -11,6 +11,7 @@ import io.github.novicezk.discord.constants.WebSocketCode;
 import io.github.novicezk.discord.enums.Compression;
 import io.github.novicezk.discord.exception.WebSocketClientStartException;
 import io.github.novicezk.discord.util.AsyncLockUtils;
+import io.github.novicezk.discord.util.ExecutorUtils;
 import com.neovisionaries.ws.client.WebSocket;
 import com.neovisionaries.ws.client.WebSocketAdapter;
 import com.neovisionaries.ws.client.WebSocketFactory;
@@ -24,24 +25,32 @@ import org.slf4j.LoggerFactory;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class UserWebSocketClient {
 	private static final Logger log = LoggerFactory.getLogger(UserWebSocketClient.class);
 	private final WebSocketFactory webSocketFactory;
-	private final Decompressor decompressor;
+	private Decompressor decompressor;
 	private final Compression compression;
 	private final String userToken;
 	private final ScheduledExecutorService heartExecutor;
 	private final JSONObject authData;
 	private final MessageListener listener;
 	private final WebSocketAdapter webSocketAdapter;
+	private final DispatchShedder dispatchShedder = new DispatchShedder();
 	private String userAgent = "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/112.0.0.0 Safari/537.36";
 	private String gatewayVersion = "9";
+	private String gatewayServer = "wss://gateway.discord.gg";
 	private int failRetryLimit = 3;
 	private WebSocket socket = null;
 	private String resumeGatewayUrl;
@@ -52,6 +61,17 @@ public class UserWebSocketClient {
 	private Object sequence = null;
 	private long interval = 41250;
 	private boolean trying = false;
+	private boolean hotStandby = false;
+	private ExecutorService executor = ExecutorUtils.defaultExecutor();
+	private boolean asyncDispatch = false;
+	private final Queue<JSONObject> dispatchQueue = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean dispatching = new AtomicBoolean(false);
+	private WebSocket standbySocket;
+	private Decompressor standbyDecompressor;
+	private JSONObject standbyHello;
+	private ScheduledFuture<?> standbyHeartbeat;
+	private boolean standbyHeartbeatAck = false;
+	private long lastSequence = -1;
 
 	public UserWebSocketClient(String userToken, MessageListener listener) {
 		this(Compression.NONE, userToken, listener);
@@ -59,11 +79,11 @@ public class UserWebSocketClient {
 
 	public UserWebSocketClient(Compression compression, String userToken, MessageListener listener) {
 		this.compression = compression;
-		this.decompressor = compression == Compression.ZLIB ? new ZlibDecompressor() : new NoneDecompressor();
+		this.decompressor = createDecompressor();
 		this.userToken = userToken;
 		this.listener = listener;
 		this.webSocketFactory = new WebSocketFactory().setConnectionTimeout(10000);
-		this.heartExecutor = Executors.newSingleThreadScheduledExecutor();
+		this.heartExecutor = Executors.newSingleThreadScheduledExecutor(ExecutorUtils.newThreadFactory("wss-heartbeat-"));
 		this.authData = createAuthData();
 		this.webSocketAdapter = new WebSocketAdapter() {
 			@Override
@@ -71,6 +91,11 @@ public class UserWebSocketClient {
 				UserWebSocketClient.this.onBinaryMessage(websocket, binary);
 			}
 
+			@Override
+			public void onTextMessage(WebSocket websocket, String text) throws Exception {
+				UserWebSocketClient.this.onTextMessage(websocket, text);
+			}
+
 			@Override
 			public void handleCallbackError(WebSocket websocket, Throwable cause) throws Exception {
 				UserWebSocketClient.this.handleCallbackError(websocket, cause);
@@ -88,6 +113,11 @@ public class UserWebSocketClient {
 		return this;
 	}
 
+	UserWebSocketClient setGatewayServer(String gatewayServer) {
+		this.gatewayServer = gatewayServer;
+		return this;
+	}
+
 	public UserWebSocketClient setUserAgent(String userAgent) {
 		this.userAgent = userAgent;
 		return this;
@@ -97,10 +127,43 @@ public class UserWebSocketClient {
 		return this.webSocketFactory;
 	}
 
+	public DispatchShedder getDispatchShedder() {
+		return this.dispatchShedder;
+	}
+
 	public void setFailRetryLimit(int failRetryLimit) {
 		this.failRetryLimit = failRetryLimit;
 	}
 
+	/**
+	 * 重连、心跳超时、备用连接等阻塞任务使用的线程池, 默认在 JDK 21+ 下为虚拟线程.
+	 */
+	public UserWebSocketClient setExecutor(ExecutorService executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * 是否在 executor 中回调 listener, 消息按接收顺序逐条回调, 不阻塞 websocket 读线程.
+	 */
+	public UserWebSocketClient setAsyncDispatch(boolean asyncDispatch) {
+		this.asyncDispatch = asyncDispatch;
+		return this;
+	}
+
+	/**
+	 * 预先建立一条到 resumeGatewayUrl 的备用连接, 断线时直接在备用连接上 RESUME.
+	 */
+	public UserWebSocketClient setHotStandby(boolean hotStandby) {
+		this.hotStandby = hotStandby;
+		if (!hotStandby) {
+			closeStandby();
+		} else if (!this.trying && CharSequenceUtil.isNotBlank(this.sessionId)) {
+			warmStandby();
+		}
+		return this;
+	}
+
 	public void connect() throws WebSocketClientStartException {
 		try {
 			this.trying = true;
@@ -119,33 +182,105 @@ public class UserWebSocketClient {
 		clearAllStates();
 	}
 
-	private synchronized void tryConnect() throws Exception {
-		if (this.decompressor != null) {
-			this.decompressor.reset();
+	private void tryConnect() throws Exception {
+		WebSocket webSocket;
+		synchronized (this) {
+			if (this.decompressor != null) {
+				this.decompressor.reset();
+			}
+			String gatewayServer = Optional.ofNullable(this.resumeGatewayUrl).orElse(this.gatewayServer);
+			this.socket = webSocket = createSocket(gatewayServer);
+		}
+		// 连接期间不持有 this, 避免虚拟线程被 pin 住以及阻塞心跳、备用连接
+		connectSocket(webSocket);
+	}
+
+	private void connectSocket(WebSocket webSocket) throws Exception {
+		if (!Thread.currentThread().isDaemon()) {
+			webSocket.connect();
+			return;
 		}
-		String gatewayServer = Optional.ofNullable(this.resumeGatewayUrl).orElse("wss://gateway.discord.gg");
+		// 读写线程继承当前线程的 daemon 属性, 在守护线程(包括虚拟线程)中连接会导致 JVM 提前退出
+		try {
+			webSocket.connect(ExecutorUtils.connectExecutor()).get();
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+	}
+
+	private WebSocket createSocket(String gatewayServer) throws Exception {
 		String gatewayUrl = String.format("%s/?encoding=json&v=%s", gatewayServer, this.gatewayVersion);
-		if (this.compression != Compression.NONE) {
+		if (this.compression == Compression.ZLIB) {
 			gatewayUrl += "&compress=" + this.compression.getKey();
 		}
-		this.socket = this.webSocketFactory.createSocket(gatewayUrl);
-		this.socket.addListener(this.webSocketAdapter);
-		this.socket.addHeader("Accept-Encoding", "gzip, deflate, br")
-				.addHeader("Accept-Language", "zh-CN,zh;q=0.9")
+		WebSocket webSocket = this.webSocketFactory.createSocket(gatewayUrl);
+		webSocket.addListener(this.webSocketAdapter);
+		webSocket.addHeader("Accept-Language", "zh-CN,zh;q=0.9")
 				.addHeader("Cache-Control", "no-cache")
 				.addHeader("Pragma", "no-cache")
-				.addHeader("Sec-Websocket-Extensions", "permessage-deflate; client_max_window_bits")
 				.addHeader("User-Agent", this.userAgent);
-		this.socket.connect();
+		if (this.compression == Compression.PERMESSAGE_DEFLATE) {
+			// 由 nv-websocket 协商并解压, 消息以文本帧回调
+			webSocket.addExtension("permessage-deflate; client_max_window_bits");
+		}
+		return webSocket;
+	}
+
+	private Decompressor createDecompressor() {
+		return this.compression == Compression.ZLIB ? new ZlibDecompressor() : new NoneDecompressor();
 	}
 
 	private void onBinaryMessage(WebSocket websocket, byte[] binary) throws Exception {
-		byte[] decompressBinary = this.decompressor.decompress(binary);
-		if (decompressBinary == null) {
+		if (websocket == this.standbySocket) {
+			handleStandbyMessage(websocket, binary);
 			return;
 		}
-		String json = new String(decompressBinary, StandardCharsets.UTF_8);
-		JSONObject data = new JSONObject(json);
+		String json;
+		synchronized (this) {
+			if (websocket != this.socket) {
+				// 已被切换掉的旧连接
+				return;
+			}
+			byte[] decompressBinary = this.decompressor.decompress(binary);
+			if (decompressBinary == null) {
+				return;
+			}
+			json = new String(decompressBinary, StandardCharsets.UTF_8);
+		}
+		handleMessage(websocket, json);
+	}
+
+	private void onTextMessage(WebSocket websocket, String text) throws Exception {
+		if (websocket == this.standbySocket) {
+			handleStandbyText(websocket, text);
+			return;
+		}
+		handleMessage(websocket, text);
+	}
+
+	private void handleMessage(WebSocket websocket, String json) {
+		if (this.dispatchShedder.isEnabled() && shedDispatch(websocket, json)) {
+			return;
+		}
+		JSONObject dispatch = handleOperation(websocket, new JSONObject(json));
+		if (dispatch == null) {
+			return;
+		}
+		if (this.asyncDispatch) {
+			this.dispatchQueue.offer(dispatch);
+			scheduleDispatch();
+		} else {
+			notifyListener(dispatch);
+		}
+	}
+
+	/**
+	 * 连接状态只在持有 this 时修改, 返回需要回调 listener 的 dispatch.
+	 */
+	private synchronized JSONObject handleOperation(WebSocket websocket, JSONObject data) {
+		if (websocket != this.socket) {
+			return null;
+		}
 		int opCode = data.getInt("op");
 		switch (opCode) {
 			case WebSocketCode.HEARTBEAT:
@@ -171,14 +306,99 @@ public class UserWebSocketClient {
 				sendClose(1009, "receive session invalid");
 				break;
 			case WebSocketCode.DISPATCH:
-				handleDispatch(data);
-				break;
+				return handleDispatch(data);
 			default:
 				log.debug("[wss] Receive unknown code: {}.", data);
 		}
+		return null;
+	}
+
+	private boolean shedDispatch(WebSocket websocket, String json) {
+		String type = DispatchShedder.peekType(json);
+		if (type == null) {
+			return false;
+		}
+		Long seq = DispatchShedder.peekSequence(json);
+		if (seq == null || !this.dispatchShedder.shouldShed(type)) {
+			return false;
+		}
+		synchronized (this) {
+			// 丢弃的消息仍需推进 sequence, 保证心跳和 RESUME 正确
+			if (websocket == this.socket && seq > this.lastSequence) {
+				this.lastSequence = seq;
+				this.sequence = seq;
+			}
+		}
+		return true;
+	}
+
+	private synchronized void handleStandbyMessage(WebSocket websocket, byte[] binary) throws Exception {
+		if (websocket != this.standbySocket) {
+			// 已切换为主连接
+			onBinaryMessage(websocket, binary);
+			return;
+		}
+		byte[] decompressBinary = this.standbyDecompressor.decompress(binary);
+		if (decompressBinary == null) {
+			return;
+		}
+		bufferStandbyHello(new String(decompressBinary, StandardCharsets.UTF_8));
+	}
+
+	private synchronized void handleStandbyText(WebSocket websocket, String text) throws Exception {
+		if (websocket != this.standbySocket) {
+			// 已切换为主连接
+			onTextMessage(websocket, text);
+			return;
+		}
+		bufferStandbyHello(text);
+	}
+
+	private void bufferStandbyHello(String json) {
+		JSONObject data = new JSONObject(json);
+		int opCode = data.getInt("op");
+		if (opCode == WebSocketCode.HELLO) {
+			log.debug("[wss] Standby connection ready.");
+			this.standbyHello = data;
+			startStandbyHeartbeat(this.standbySocket, data.getJSONObject("d").getLong("heartbeat_interval"));
+		} else if (opCode == WebSocketCode.HEARTBEAT_ACK) {
+			this.standbyHeartbeatAck = true;
+		}
+	}
+
+	private void startStandbyHeartbeat(WebSocket standby, long standbyInterval) {
+		if (this.standbyHeartbeat != null) {
+			this.standbyHeartbeat.cancel(false);
+		}
+		// 未 identify 前也可以发送心跳, 避免备用连接被服务端超时关闭
+		this.standbyHeartbeatAck = true;
+		this.standbyHeartbeat = this.heartExecutor.scheduleAtFixedRate(() -> sendStandbyHeartbeat(standby),
+				(long) Math.floor(RandomUtil.randomDouble(0, 1) * standbyInterval), standbyInterval, TimeUnit.MILLISECONDS);
 	}
 
-	private void handleDispatch(JSONObject raw) {
+	private void sendStandbyHeartbeat(WebSocket standby) {
+		synchronized (this) {
+			if (standby != this.standbySocket) {
+				return;
+			}
+			if (this.standbyHeartbeatAck) {
+				this.standbyHeartbeatAck = false;
+				standby.sendText(new JSONObject().put("op", WebSocketCode.HEARTBEAT).put("d", JSONObject.NULL).toString());
+				return;
+			}
+		}
+		log.debug("[wss] Standby heartbeat has not ack, waiting rewarm...");
+		closeStandby();
+		warmStandby();
+	}
+
+	private JSONObject handleDispatch(JSONObject raw) {
+		long seq = raw.optLong("s", -1);
+		if (seq > 0 && seq <= this.lastSequence) {
+			log.debug("[wss] Skip duplicate dispatch: {}.", seq);
+			return null;
+		}
+		this.lastSequence = Math.max(this.lastSequence, seq);
 		this.sequence = raw.opt("s");
 		String t = raw.getString("t");
 		if ("READY".equals(t)) {
@@ -187,12 +407,35 @@ public class UserWebSocketClient {
 			this.resumeGatewayUrl = content.getString("resume_gateway_url");
 			log.debug("[wss] Dispatch ready: identify.");
 			connectSuccess();
-			return;
+			return null;
 		} else if ("RESUMED".equals(t)) {
 			log.debug("[wss] Dispatch read: resumed.");
 			connectSuccess();
-			return;
+			return null;
 		}
+		return raw;
+	}
+
+	private void scheduleDispatch() {
+		if (!this.dispatchQueue.isEmpty() && this.dispatching.compareAndSet(false, true)) {
+			this.executor.execute(this::drainDispatchQueue);
+		}
+	}
+
+	private void drainDispatchQueue() {
+		try {
+			JSONObject raw;
+			while ((raw = this.dispatchQueue.poll()) != null) {
+				notifyListener(raw);
+			}
+		} finally {
+			this.dispatching.set(false);
+		}
+		// 释放标记后可能有新消息入队
+		scheduleDispatch();
+	}
+
+	private void notifyListener(JSONObject raw) {
 		try {
 			this.listener.onMessage(raw);
 		} catch (Exception e) {
@@ -201,6 +444,10 @@ public class UserWebSocketClient {
 	}
 
 	private void onDisconnected(WebSocket websocket, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame, boolean closedByServer) throws Exception {
+		if (websocket == this.standbySocket) {
+			onStandbyDisconnected();
+			return;
+		}
 		int code;
 		String closeReason;
 		if (closedByServer) {
@@ -223,15 +470,111 @@ public class UserWebSocketClient {
 			this.listener.onClose(code, closeReason);
 		} else if (code == 2001) {
 			// reconnect
+			if (failoverToStandby(closeReason)) {
+				return;
+			}
 			log.warn("[wss] Waiting try reconnect...");
-			tryReconnect();
+			this.executor.execute(this::tryReconnect);
 		} else {
 			log.warn("[wss] Closed by {}({}). Waiting try new connection...", code, closeReason);
 			clearAllStates();
-			tryNewConnect();
+			this.executor.execute(this::tryNewConnect);
 		}
 	}
 
+	private void onStandbyDisconnected() {
+		clearStandbyStates();
+		if (this.hotStandby && !this.trying && CharSequenceUtil.isNotBlank(this.sessionId)) {
+			log.debug("[wss] Standby connection closed, waiting rewarm...");
+			this.heartExecutor.schedule(this::warmStandby, 5, TimeUnit.SECONDS);
+		}
+	}
+
+	private void warmStandby() {
+		if (!this.hotStandby || this.standbySocket != null || CharSequenceUtil.isBlank(this.resumeGatewayUrl)) {
+			return;
+		}
+		String gatewayServer = this.resumeGatewayUrl;
+		this.executor.execute(() -> {
+			WebSocket standby;
+			synchronized (this) {
+				if (this.standbySocket != null) {
+					return;
+				}
+				try {
+					standby = createSocket(gatewayServer);
+				} catch (Exception e) {
+					log.warn("[wss] Create standby connection fail: {}", e.getMessage());
+					return;
+				}
+				this.standbySocket = standby;
+				this.standbyDecompressor = createDecompressor();
+				this.standbyHello = null;
+			}
+			try {
+				connectSocket(standby);
+			} catch (Exception e) {
+				log.warn("[wss] Standby connect fail: {}", e.getMessage());
+				synchronized (this) {
+					if (this.standbySocket == standby) {
+						clearStandbyStates();
+					}
+				}
+			}
+		});
+	}
+
+	private synchronized boolean failoverToStandby(String reason) {
+		WebSocket standby = this.standbySocket;
+		if (standby == null || !standby.isOpen() || CharSequenceUtil.isBlank(this.sessionId)) {
+			return false;
+		}
+		log.warn("[wss] Failover to standby connection: {}.", reason);
+		WebSocket previous = this.socket;
+		if (previous != null) {
+			previous.removeListener(this.webSocketAdapter);
+		}
+		clearSocketStates();
+		this.socket = standby;
+		this.decompressor = this.standbyDecompressor;
+		JSONObject hello = this.standbyHello;
+		long heartbeatDelay = this.standbyHeartbeat == null ? 0 : Math.max(0, this.standbyHeartbeat.getDelay(TimeUnit.MILLISECONDS));
+		boolean heartbeatAck = this.standbyHeartbeatAck;
+		clearStandbyStates();
+		if (hello != null) {
+			// 沿用备用连接的心跳节奏
+			startHeartbeat(hello.getJSONObject("d").getLong("heartbeat_interval"), heartbeatDelay);
+			this.heartbeatAck = heartbeatAck;
+			doResumeOrIdentify();
+		}
+		if (previous != null) {
+			previous.disconnect(2001, reason);
+		}
+		return true;
+	}
+
+	private void closeStandby() {
+		WebSocket standby;
+		synchronized (this) {
+			standby = this.standbySocket;
+			clearStandbyStates();
+		}
+		if (standby != null) {
+			standby.removeListener(this.webSocketAdapter);
+			standby.disconnect(5240, "close standby");
+		}
+	}
+
+	private void clearStandbyStates() {
+		if (this.standbyHeartbeat != null) {
+			this.standbyHeartbeat.cancel(false);
+			this.standbyHeartbeat = null;
+		}
+		this.standbySocket = null;
+		this.standbyDecompressor = null;
+		this.standbyHello = null;
+	}
+
 	private void tryReconnect() {
 		clearSocketStates();
 		try {
@@ -283,9 +626,11 @@ public class UserWebSocketClient {
 
 	private void handleHeartbeat() {
 		send(WebSocketCode.HEARTBEAT, this.sequence);
-		this.heartbeatTimeout = ThreadUtil.execAsync(() -> {
-			ThreadUtil.sleep(this.interval);
-			sendReconnect("heartbeat has not ack");
+		this.heartbeatTimeout = this.executor.submit(() -> {
+			// ack 后 cancel(true) 会中断 sleep, 此时不能触发重连
+			if (ThreadUtil.sleep(this.interval)) {
+				sendReconnect("heartbeat has not ack");
+			}
 		});
 	}
 
@@ -297,17 +642,24 @@ public class UserWebSocketClient {
 	}
 
 	private void handleHello(JSONObject data) {
+		long helloInterval = data.getJSONObject("d").getLong("heartbeat_interval");
+		startHeartbeat(helloInterval, (long) Math.floor(RandomUtil.randomDouble(0, 1) * helloInterval));
+	}
+
+	private void startHeartbeat(long heartbeatInterval, long initialDelay) {
 		clearHeartbeatInterval();
-		this.interval = data.getJSONObject("d").getLong("heartbeat_interval");
+		this.interval = heartbeatInterval;
 		this.heartbeatAck = true;
 		this.heartbeatInterval = this.heartExecutor.scheduleAtFixedRate(() -> {
-			if (this.heartbeatAck) {
-				this.heartbeatAck = false;
-				send(WebSocketCode.HEARTBEAT, this.sequence);
-			} else {
-				sendReconnect("heartbeat has not ack interval");
+			synchronized (this) {
+				if (this.heartbeatAck) {
+					this.heartbeatAck = false;
+					send(WebSocketCode.HEARTBEAT, this.sequence);
+				} else {
+					sendReconnect("heartbeat has not ack interval");
+				}
 			}
-		}, (long) Math.floor(RandomUtil.randomDouble(0, 1) * this.interval), this.interval, TimeUnit.MILLISECONDS);
+		}, initialDelay, this.interval, TimeUnit.MILLISECONDS);
 	}
 
 	private void doResumeOrIdentify() {
@@ -333,19 +685,24 @@ public class UserWebSocketClient {
 		clearResumeStates();
 	}
 
-	private void clearSocketStates() {
+	private synchronized void clearSocketStates() {
 		clearHeartbeatTimeout();
 		clearHeartbeatInterval();
 		this.socket = null;
 	}
 
-	private void clearResumeStates() {
+	private synchronized void clearResumeStates() {
+		closeStandby();
 		this.sessionId = null;
 		this.sequence = null;
+		this.lastSequence = -1;
 		this.resumeGatewayUrl = null;
 	}
 
-	private void sendReconnect(String reason) {
+	private synchronized void sendReconnect(String reason) {
+		if (failoverToStandby(reason)) {
+			return;
+		}
 		sendClose(2001, reason);
 	}
 
@@ -364,6 +721,7 @@ public class UserWebSocketClient {
 	private void connectSuccess() {
 		this.trying = false;
 		connectFinish(1, "");
+		warmStandby();
 	}
 
 	private void connectFinish(int code, String description) {
@@ -0,0 +1,37 @@
+package io.github.novicezk.discord.util;
+
+import cn.hutool.core.thread.ThreadUtil;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * JDK 21+ 实现, 所有任务运行在虚拟线程上.
+ */
+public final class ExecutorUtils {
+	private static final ExecutorService DEFAULT_EXECUTOR = newExecutor("wss-task-");
+	private static final ExecutorService CONNECT_EXECUTOR = Executors.newCachedThreadPool(ThreadUtil.newNamedThreadFactory("wss-connect-", false));
+
+	private ExecutorUtils() {
+	}
+
+	public static ExecutorService defaultExecutor() {
+		return DEFAULT_EXECUTOR;
+	}
+
+	/**
+	 * 非守护的平台线程, 虚拟线程总是守护线程, 不能在其中建立 websocket 连接.
+	 */
+	public static ExecutorService connectExecutor() {
+		return CONNECT_EXECUTOR;
+	}
+
+	public static ThreadFactory newThreadFactory(String prefix) {
+		return Thread.ofVirtual().name(prefix, 0).factory();
+	}
+
+	public static ExecutorService newExecutor(String prefix) {
+		return Executors.newThreadPerTaskExecutor(newThreadFactory(prefix));
+	}
+}
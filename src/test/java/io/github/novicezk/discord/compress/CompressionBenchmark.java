@@ -0,0 +1,352 @@
+package io.github.novicezk.discord.compress;
+
+import com.neovisionaries.ws.client.WebSocket;
+import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * 对比 NONE、zlib-stream、permessage-deflate 三种压缩方式在客户端真实接收路径上的开销.
+ * <p>
+ * 本地起一个最小的 websocket 服务端, 客户端使用 nv-websocket 连接: permessage-deflate 由 nv-websocket 自带的解压实现处理,
+ * zlib-stream 由 {@link ZlibDecompressor} 处理. 统计均取自 websocket 读线程, 包含帧解析.
+ * <ul>
+ *     <li>bytes/event: 每条事件的帧负载字节数</li>
+ *     <li>cpu ns/event: 读线程每条事件的 CPU 时间</li>
+ *     <li>alloc B/event: 读线程每条事件的内存分配量 (分配速率, 不是常驻内存)</li>
+ *     <li>retained KB/conn: 每条空闲连接常驻的堆内存, zlib-stream 的 Inflater 窗口在堆外, 不计入</li>
+ * </ul>
+ * 用法: CompressionBenchmark [事件文件(每行一条 gateway payload)] [轮数], 默认使用 gateway-events.jsonl.
+ */
+public class CompressionBenchmark {
+	private static final byte[] SYNC_FLUSH_TAIL = {0x00, 0x00, (byte) 0xFF, (byte) 0xFF};
+	private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+	private static final int WARMUP_ROUNDS = 10;
+	private static final int RETAINED_CONNECTIONS = 20;
+	private static final int RETAINED_EVENTS = 100;
+
+	private enum Mode {
+		NONE, ZLIB_STREAM, PERMESSAGE_DEFLATE
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<byte[]> events = args.length > 0 ? readEvents(Files.newInputStream(Paths.get(args[0]))) :
+				readEvents(CompressionBenchmark.class.getResourceAsStream("/gateway-events.jsonl"));
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		System.out.printf("events: %d, rounds: %d%n", events.size(), rounds);
+		System.out.printf("%-20s %12s %12s %14s %17s%n", "mode", "bytes/event", "cpu ns/event", "alloc B/event", "retained KB/conn");
+		for (Mode mode : Mode.values()) {
+			run(mode, events, rounds);
+		}
+		System.out.println("zlib-stream: java.util.zip.Inflater native state (~40 KB per connection) is not included in retained heap.");
+	}
+
+	private static void run(Mode mode, List<byte[]> events, int rounds) throws Exception {
+		List<byte[]> stream = new ArrayList<>();
+		for (int i = 0; i < WARMUP_ROUNDS + rounds; i++) {
+			stream.addAll(events);
+		}
+		List<byte[]> frames = encode(mode, stream);
+		Result result = receive(mode, events, frames, WARMUP_ROUNDS * events.size());
+		long count = (long) rounds * events.size();
+		long bytes = frames.stream().skip((long) WARMUP_ROUNDS * events.size()).mapToLong(frame -> frame.length).sum() / count;
+		long retained = retainedPerConnection(mode, encode(mode, events.subList(0, Math.min(RETAINED_EVENTS, events.size()))));
+		System.out.printf("%-20s %12d %12d %14d %17d%n", mode, bytes, result.cpu / count,
+				result.alloc < 0 ? -1 : result.alloc / count, retained / 1024);
+	}
+
+	private static Result receive(Mode mode, List<byte[]> events, List<byte[]> frames, int warmup) throws Exception {
+		try (LoopbackServer server = new LoopbackServer(mode, frames)) {
+			Receiver receiver = new Receiver(mode, events, frames.size(), warmup);
+			WebSocket socket = receiver.connect(server.port());
+			if (!receiver.finished.await(5, TimeUnit.MINUTES)) {
+				throw new IllegalStateException(mode + " receive timeout");
+			}
+			socket.disconnect();
+			if (receiver.error != null) {
+				throw receiver.error;
+			}
+			return receiver.result;
+		}
+	}
+
+	private static long retainedPerConnection(Mode mode, List<byte[]> frames) throws Exception {
+		try (LoopbackServer server = new LoopbackServer(mode, frames)) {
+			long before = usedHeap();
+			List<Receiver> receivers = new ArrayList<>();
+			List<WebSocket> sockets = new ArrayList<>();
+			for (int i = 0; i < RETAINED_CONNECTIONS; i++) {
+				Receiver receiver = new Receiver(mode, null, frames.size(), 0);
+				sockets.add(receiver.connect(server.port()));
+				receivers.add(receiver);
+			}
+			for (Receiver receiver : receivers) {
+				if (!receiver.finished.await(1, TimeUnit.MINUTES)) {
+					throw new IllegalStateException(mode + " receive timeout");
+				}
+			}
+			long retained = (usedHeap() - before) / RETAINED_CONNECTIONS;
+			sockets.forEach(WebSocket::disconnect);
+			return Math.max(0, retained);
+		}
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static List<byte[]> encode(Mode mode, List<byte[]> events) {
+		if (mode == Mode.NONE) {
+			return events;
+		}
+		boolean perMessageDeflate = mode == Mode.PERMESSAGE_DEFLATE;
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, perMessageDeflate);
+		byte[] buffer = new byte[8192];
+		List<byte[]> frames = new ArrayList<>(events.size());
+		try {
+			for (byte[] event : events) {
+				deflater.setInput(event);
+				ByteArrayOutputStream output = new ByteArrayOutputStream();
+				int n;
+				do {
+					n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+					output.write(buffer, 0, n);
+				} while (n == buffer.length);
+				byte[] frame = output.toByteArray();
+				// permessage-deflate 去掉结尾的 00 00 FF FF, zlib-stream 保留作为消息边界
+				frames.add(perMessageDeflate ? Arrays.copyOf(frame, frame.length - SYNC_FLUSH_TAIL.length) : frame);
+			}
+		} finally {
+			deflater.end();
+		}
+		return frames;
+	}
+
+	private static List<byte[]> readEvents(InputStream inputStream) throws IOException {
+		List<byte[]> events = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.trim().isEmpty()) {
+					events.add(line.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+		}
+		return events;
+	}
+
+	private static class Result {
+		private long cpu;
+		private long alloc;
+	}
+
+	private static class Receiver extends WebSocketAdapter {
+		private final Mode mode;
+		private final List<byte[]> expected;
+		private final int total;
+		private final int warmup;
+		private final ZlibDecompressor decompressor;
+		private final CountDownLatch finished = new CountDownLatch(1);
+		private final Result result = new Result();
+		private int received = 0;
+		private long cpuStart;
+		private long allocStart;
+		private Exception error;
+
+		Receiver(Mode mode, List<byte[]> expected, int total, int warmup) {
+			this.mode = mode;
+			this.expected = expected;
+			this.total = total;
+			this.warmup = warmup;
+			this.decompressor = mode == Mode.ZLIB_STREAM ? new ZlibDecompressor() : null;
+		}
+
+		WebSocket connect(int port) throws Exception {
+			WebSocket socket = new WebSocketFactory().createSocket("ws://127.0.0.1:" + port);
+			if (this.mode == Mode.PERMESSAGE_DEFLATE) {
+				socket.addExtension("permessage-deflate; client_max_window_bits");
+			}
+			socket.addListener(this);
+			return socket.connect();
+		}
+
+		@Override
+		public void onTextMessage(WebSocket websocket, String text) {
+			consume(text);
+		}
+
+		@Override
+		public void onBinaryMessage(WebSocket websocket, byte[] binary) throws Exception {
+			byte[] data = this.decompressor.decompress(binary);
+			if (data != null) {
+				consume(new String(data, StandardCharsets.UTF_8));
+			}
+		}
+
+		@Override
+		public void handleCallbackError(WebSocket websocket, Throwable cause) {
+			this.error = cause instanceof Exception ? (Exception) cause : new IllegalStateException(cause);
+			this.finished.countDown();
+		}
+
+		private void consume(String json) {
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (this.received == this.warmup) {
+				this.cpuStart = bean.getCurrentThreadCpuTime();
+				this.allocStart = allocatedBytes(bean);
+			}
+			if (this.expected != null && this.received < this.expected.size()
+					&& !json.equals(new String(this.expected.get(this.received), StandardCharsets.UTF_8))) {
+				throw new IllegalStateException(this.mode + " decode mismatch at event " + this.received);
+			}
+			this.received++;
+			if (this.received == this.total) {
+				this.result.cpu = bean.getCurrentThreadCpuTime() - this.cpuStart;
+				this.result.alloc = this.allocStart < 0 ? -1 : allocatedBytes(bean) - this.allocStart;
+				this.finished.countDown();
+			}
+		}
+
+		private static long allocatedBytes(ThreadMXBean bean) {
+			if (bean instanceof com.sun.management.ThreadMXBean) {
+				return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * 最小的 websocket 服务端, 每条连接完成握手后发送全部帧, 直到客户端断开.
+	 */
+	private static class LoopbackServer implements AutoCloseable {
+		private final Mode mode;
+		private final List<byte[]> frames;
+		private final ServerSocket serverSocket;
+
+		LoopbackServer(Mode mode, List<byte[]> frames) throws IOException {
+			this.mode = mode;
+			this.frames = frames;
+			this.serverSocket = new ServerSocket(0);
+			Thread acceptor = new Thread(this::accept, "loopback-server");
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+
+		int port() {
+			return this.serverSocket.getLocalPort();
+		}
+
+		private void accept() {
+			while (!this.serverSocket.isClosed()) {
+				try {
+					Socket socket = this.serverSocket.accept();
+					Thread sender = new Thread(() -> serve(socket), "loopback-sender");
+					sender.setDaemon(true);
+					sender.start();
+				} catch (IOException e) {
+					return;
+				}
+			}
+		}
+
+		private void serve(Socket socket) {
+			try (Socket s = socket) {
+				InputStream input = s.getInputStream();
+				OutputStream output = new BufferedOutputStream(s.getOutputStream(), 65536);
+				handshake(input, output);
+				int opcode = this.mode == Mode.ZLIB_STREAM ? 0x2 : 0x1;
+				int rsv1 = this.mode == Mode.PERMESSAGE_DEFLATE ? 0x40 : 0;
+				for (byte[] frame : this.frames) {
+					writeFrame(output, 0x80 | rsv1 | opcode, frame);
+				}
+				output.flush();
+				while (input.read() != -1) {
+					// 等待客户端断开
+				}
+			} catch (Exception e) {
+				// 客户端断开
+			}
+		}
+
+		private void handshake(InputStream input, OutputStream output) throws Exception {
+			String key = null;
+			String line;
+			while (!(line = readLine(input)).isEmpty()) {
+				int colon = line.indexOf(':');
+				if (colon > 0 && "Sec-WebSocket-Key".equalsIgnoreCase(line.substring(0, colon).trim())) {
+					key = line.substring(colon + 1).trim();
+				}
+			}
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII));
+			StringBuilder response = new StringBuilder("HTTP/1.1 101 Switching Protocols\r\n")
+					.append("Upgrade: websocket\r\n")
+					.append("Connection: Upgrade\r\n")
+					.append("Sec-WebSocket-Accept: ").append(Base64.getEncoder().encodeToString(digest)).append("\r\n");
+			if (this.mode == Mode.PERMESSAGE_DEFLATE) {
+				response.append("Sec-WebSocket-Extensions: permessage-deflate\r\n");
+			}
+			output.write(response.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII));
+			output.flush();
+		}
+
+		private String readLine(InputStream input) throws IOException {
+			StringBuilder line = new StringBuilder();
+			int b;
+			while ((b = input.read()) != -1 && b != '\n') {
+				if (b != '\r') {
+					line.append((char) b);
+				}
+			}
+			return line.toString();
+		}
+
+		private void writeFrame(OutputStream output, int first, byte[] payload) throws IOException {
+			output.write(first);
+			if (payload.length < 126) {
+				output.write(payload.length);
+			} else if (payload.length < 65536) {
+				output.write(126);
+				output.write(payload.length >>> 8);
+				output.write(payload.length);
+			} else {
+				output.write(127);
+				for (int shift = 56; shift >= 0; shift -= 8) {
+					output.write((int) ((long) payload.length >>> shift));
+				}
+			}
+			output.write(payload);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.serverSocket.close();
+		}
+	}
+}
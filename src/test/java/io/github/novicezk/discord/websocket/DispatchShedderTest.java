@@ -0,0 +1,103 @@
+package io.github.novicezk.discord.websocket;
+
+import io.github.novicezk.discord.enums.DispatchPriority;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DispatchShedderTest {
+
+	@Test
+	void peekTypeAndSequence() {
+		String json = "{\"t\":\"TYPING_START\",\"s\":42,\"op\":0,\"d\":{\"t\":\"x\",\"s\":1}}";
+		assertEquals("TYPING_START", DispatchShedder.peekType(json));
+		assertEquals(Long.valueOf(42), DispatchShedder.peekSequence(json));
+	}
+
+	@Test
+	void peekAllowsWhitespace() {
+		String json = "{ \"t\" : \"PRESENCE_UPDATE\", \"s\" :\t7, \"op\": 0, \"d\" : {} }";
+		assertEquals("PRESENCE_UPDATE", DispatchShedder.peekType(json));
+		assertEquals(Long.valueOf(7), DispatchShedder.peekSequence(json));
+	}
+
+	@Test
+	void peekIgnoresNullType() {
+		String json = "{\"t\":null,\"s\":null,\"op\":11,\"d\":{\"t\":\"MESSAGE_CREATE\",\"s\":3}}";
+		assertNull(DispatchShedder.peekType(json));
+		assertNull(DispatchShedder.peekSequence(json));
+	}
+
+	@Test
+	void peekOnlyBeforeData() {
+		String json = "{\"op\":0,\"d\":{\"t\":\"x\",\"s\":1},\"t\":\"TYPING_START\",\"s\":42}";
+		assertNull(DispatchShedder.peekType(json));
+		assertNull(DispatchShedder.peekSequence(json));
+	}
+
+	@Test
+	void peekSkipsStringValues() {
+		String json = "{\"op\":0,\"x\":\"t\",\"t\":\"TYPING_START\",\"s\":5}";
+		assertEquals("TYPING_START", DispatchShedder.peekType(json));
+		assertEquals(Long.valueOf(5), DispatchShedder.peekSequence(json));
+	}
+
+	@Test
+	void disabledByDefault() {
+		DispatchShedder shedder = new DispatchShedder();
+		assertFalse(shedder.isEnabled());
+		shedder.setThreshold(DispatchPriority.LOW, 10);
+		assertTrue(shedder.isEnabled());
+		shedder.setThreshold(DispatchPriority.LOW, 0);
+		assertFalse(shedder.isEnabled());
+		shedder.setThreshold(DispatchPriority.HIGH, 10);
+		assertFalse(shedder.isEnabled());
+	}
+
+	@Test
+	void shedLowPriorityOverThreshold() {
+		DispatchShedder shedder = new DispatchShedder().setThreshold(DispatchPriority.LOW, 3);
+		int shed = 0;
+		for (int i = 0; i < 10; i++) {
+			if (shedder.shouldShed("TYPING_START", 1000)) {
+				shed++;
+			}
+		}
+		assertEquals(7, shed);
+		assertFalse(shedder.shouldShed("MESSAGE_CREATE", 1000));
+		assertFalse(shedder.shouldShed("CHANNEL_UPDATE", 1000));
+		assertEquals(Long.valueOf(7), shedder.getShedCounts().get("TYPING_START"));
+		assertEquals(7, shedder.getShedTotal());
+	}
+
+	@Test
+	void readyAndResumedAreNeverShed() {
+		DispatchShedder shedder = new DispatchShedder()
+				.setPriority("READY", DispatchPriority.LOW)
+				.setPriority("RESUMED", DispatchPriority.LOW)
+				.setThreshold(DispatchPriority.LOW, 1)
+				.setThreshold(DispatchPriority.NORMAL, 1);
+		for (int i = 0; i < 5; i++) {
+			assertFalse(shedder.shouldShed("READY", 1000));
+			assertFalse(shedder.shouldShed("RESUMED", 1000));
+			assertFalse(shedder.shouldShed("MESSAGE_CREATE", 1000));
+		}
+		assertEquals(DispatchPriority.HIGH, shedder.getPriority("READY"));
+		assertTrue(shedder.shouldShed("CHANNEL_UPDATE", 1000));
+	}
+
+	@Test
+	void overloadCarriesIntoNextWindow() {
+		DispatchShedder shedder = new DispatchShedder().setThreshold(DispatchPriority.LOW, 3);
+		for (int i = 0; i < 5; i++) {
+			shedder.shouldShed("TYPING_START", 1000);
+		}
+		// 上一个窗口过载, 新窗口开始时仍然丢弃
+		assertTrue(shedder.shouldShed("TYPING_START", 2000));
+		// 连续两个窗口以上没有消息, 不再视为过载
+		assertFalse(shedder.shouldShed("TYPING_START", 5000));
+	}
+}
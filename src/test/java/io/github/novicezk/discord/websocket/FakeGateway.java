@@ -0,0 +1,191 @@
+package io.github.novicezk.discord.websocket;
+
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 测试用的本地 gateway, 只支持未压缩的文本帧.
+ */
+class FakeGateway implements AutoCloseable {
+	private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+	private final ServerSocket serverSocket;
+	private final Handler handler;
+	private final List<Connection> connections = new CopyOnWriteArrayList<>();
+
+	FakeGateway(Handler handler) throws IOException {
+		this.handler = handler;
+		this.serverSocket = new ServerSocket(0);
+		Thread acceptor = new Thread(this::accept, "fake-gateway");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	String url() {
+		return "ws://127.0.0.1:" + this.serverSocket.getLocalPort();
+	}
+
+	Connection connection(int index) {
+		return this.connections.get(index - 1);
+	}
+
+	private void accept() {
+		while (!this.serverSocket.isClosed()) {
+			try {
+				Socket socket = this.serverSocket.accept();
+				Thread reader = new Thread(() -> serve(socket), "fake-gateway-connection");
+				reader.setDaemon(true);
+				reader.start();
+			} catch (IOException e) {
+				return;
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		try (Socket s = socket) {
+			InputStream input = s.getInputStream();
+			OutputStream output = new BufferedOutputStream(s.getOutputStream());
+			handshake(input, output);
+			Connection connection;
+			synchronized (this.connections) {
+				connection = new Connection(this.connections.size() + 1, output);
+				this.connections.add(connection);
+			}
+			this.handler.onOpen(connection);
+			String text;
+			while ((text = readText(input)) != null) {
+				this.handler.onMessage(connection, new JSONObject(text));
+			}
+		} catch (Exception e) {
+			// 客户端断开
+		}
+	}
+
+	private void handshake(InputStream input, OutputStream output) throws Exception {
+		String key = null;
+		String line;
+		while (!(line = readLine(input)).isEmpty()) {
+			int colon = line.indexOf(':');
+			if (colon > 0 && "Sec-WebSocket-Key".equalsIgnoreCase(line.substring(0, colon).trim())) {
+				key = line.substring(colon + 1).trim();
+			}
+		}
+		byte[] digest = MessageDigest.getInstance("SHA-1").digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII));
+		String response = "HTTP/1.1 101 Switching Protocols\r\n"
+				+ "Upgrade: websocket\r\n"
+				+ "Connection: Upgrade\r\n"
+				+ "Sec-WebSocket-Accept: " + Base64.getEncoder().encodeToString(digest) + "\r\n\r\n";
+		output.write(response.getBytes(StandardCharsets.US_ASCII));
+		output.flush();
+	}
+
+	private String readLine(InputStream input) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int b;
+		while ((b = input.read()) != -1 && b != '\n') {
+			if (b != '\r') {
+				line.append((char) b);
+			}
+		}
+		return line.toString();
+	}
+
+	/**
+	 * 读取下一条文本帧, 连接关闭时返回 null. 客户端帧总是带掩码.
+	 */
+	private String readText(InputStream input) throws IOException {
+		while (true) {
+			int first = input.read();
+			int second = input.read();
+			if (first < 0 || second < 0) {
+				return null;
+			}
+			long length = second & 0x7F;
+			if (length == 126) {
+				length = (input.read() << 8) | input.read();
+			} else if (length == 127) {
+				length = 0;
+				for (int i = 0; i < 8; i++) {
+					length = (length << 8) | input.read();
+				}
+			}
+			byte[] mask = new byte[4];
+			if ((second & 0x80) != 0) {
+				readFully(input, mask);
+			}
+			byte[] payload = new byte[(int) length];
+			readFully(input, payload);
+			for (int i = 0; i < payload.length; i++) {
+				payload[i] ^= mask[i % 4];
+			}
+			int opcode = first & 0x0F;
+			if (opcode == 0x8) {
+				return null;
+			} else if (opcode == 0x1) {
+				return new String(payload, StandardCharsets.UTF_8);
+			}
+		}
+	}
+
+	private void readFully(InputStream input, byte[] buffer) throws IOException {
+		int offset = 0;
+		while (offset < buffer.length) {
+			int n = input.read(buffer, offset, buffer.length - offset);
+			if (n < 0) {
+				throw new IOException("Closed");
+			}
+			offset += n;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.serverSocket.close();
+	}
+
+	interface Handler {
+		void onOpen(Connection connection) throws IOException;
+
+		void onMessage(Connection connection, JSONObject message) throws IOException;
+	}
+
+	static class Connection {
+		private final int index;
+		private final OutputStream output;
+
+		Connection(int index, OutputStream output) {
+			this.index = index;
+			this.output = output;
+		}
+
+		int getIndex() {
+			return this.index;
+		}
+
+		synchronized void send(JSONObject message) throws IOException {
+			byte[] payload = message.toString().getBytes(StandardCharsets.UTF_8);
+			this.output.write(0x81);
+			if (payload.length < 126) {
+				this.output.write(payload.length);
+			} else {
+				this.output.write(126);
+				this.output.write(payload.length >>> 8);
+				this.output.write(payload.length);
+			}
+			this.output.write(payload);
+			this.output.flush();
+		}
+	}
+}
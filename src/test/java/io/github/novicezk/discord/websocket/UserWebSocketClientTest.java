@@ -0,0 +1,153 @@
+package io.github.novicezk.discord.websocket;
+
+import io.github.novicezk.discord.constants.WebSocketCode;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class UserWebSocketClientTest {
+	private static final long MAIN_HEARTBEAT_INTERVAL = 60000;
+	private static final long STANDBY_HEARTBEAT_INTERVAL = 200;
+
+	@Test
+	void skipDuplicateSequence() throws Exception {
+		BlockingQueue<String> log = new LinkedBlockingQueue<>();
+		List<Long> received = new CopyOnWriteArrayList<>();
+		Gateway handler = new Gateway(log) {
+			@Override
+			void onIdentify(FakeGateway.Connection connection) throws IOException {
+				connection.send(dispatch("READY", 1, new JSONObject().put("session_id", "session").put("resume_gateway_url", this.url)));
+				for (long seq : new long[]{2, 3, 3, 2, 4}) {
+					connection.send(dispatch("MESSAGE_CREATE", seq, new JSONObject()));
+				}
+			}
+		};
+		try (FakeGateway gateway = new FakeGateway(handler)) {
+			handler.url = gateway.url();
+			UserWebSocketClient client = newClient("dedup", gateway, received);
+			client.connect();
+			awaitSize(received, 3);
+			assertEquals(Arrays.asList(2L, 3L, 4L), received);
+			client.disconnect();
+		}
+	}
+
+	@Test
+	void failoverResumesOnStandby() throws Exception {
+		BlockingQueue<String> log = new LinkedBlockingQueue<>();
+		List<Long> received = new CopyOnWriteArrayList<>();
+		Gateway handler = new Gateway(log) {
+			@Override
+			void onIdentify(FakeGateway.Connection connection) throws IOException {
+				connection.send(dispatch("READY", 1, new JSONObject().put("session_id", "session").put("resume_gateway_url", this.url)));
+				connection.send(dispatch("MESSAGE_CREATE", 2, new JSONObject()));
+				connection.send(dispatch("MESSAGE_CREATE", 3, new JSONObject()));
+			}
+
+			@Override
+			void onResume(FakeGateway.Connection connection) throws IOException {
+				// 服务端重放已经收到过的 3
+				connection.send(dispatch("MESSAGE_CREATE", 3, new JSONObject()));
+				connection.send(dispatch("MESSAGE_CREATE", 4, new JSONObject()));
+				connection.send(dispatch("RESUMED", 5, new JSONObject()));
+			}
+		};
+		try (FakeGateway gateway = new FakeGateway(handler)) {
+			handler.url = gateway.url();
+			UserWebSocketClient client = newClient("failover", gateway, received).setHotStandby(true);
+			client.connect();
+			awaitSize(received, 2);
+			// 备用连接收到 HELLO 后自行心跳, 此时还未 identify
+			awaitLog(log, "2:heartbeat:null"::equals);
+			gateway.connection(1).send(new JSONObject().put("op", WebSocketCode.RECONNECT).put("d", JSONObject.NULL));
+			// 直接在备用连接上 RESUME, 不再新建连接
+			awaitLog(log, "2:resume:3"::equals);
+			awaitSize(received, 3);
+			assertEquals(Arrays.asList(2L, 3L, 4L), received);
+			// 主连接 HELLO 的心跳间隔为 60s, 提升后沿用备用连接的 200ms 心跳并带上 sequence
+			awaitLog(log, line -> line.startsWith("2:heartbeat:") && !line.endsWith("null"));
+			client.disconnect();
+		}
+	}
+
+	private UserWebSocketClient newClient(String token, FakeGateway gateway, List<Long> received) {
+		return new UserWebSocketClient(token, message -> received.add(message.getLong("s")))
+				.setGatewayServer(gateway.url());
+	}
+
+	private static JSONObject dispatch(String type, long seq, JSONObject data) {
+		return new JSONObject().put("t", type).put("s", seq).put("op", WebSocketCode.DISPATCH).put("d", data);
+	}
+
+	private static void awaitSize(List<Long> received, int size) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (received.size() < size && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		// 再等一会儿, 确认没有多余的重复消息
+		Thread.sleep(200);
+	}
+
+	private static void awaitLog(BlockingQueue<String> log, Predicate<String> predicate) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		String line;
+		while ((line = log.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) != null) {
+			if (predicate.test(line)) {
+				return;
+			}
+		}
+		fail("Gateway did not receive the expected message");
+	}
+
+	/**
+	 * 第一条连接的心跳间隔为 60s, 之后的连接 (备用连接) 为 200ms; 收到的心跳与 RESUME 记录为 "连接序号:类型:值".
+	 */
+	private abstract static class Gateway implements FakeGateway.Handler {
+		private final BlockingQueue<String> log;
+		protected String url;
+
+		Gateway(BlockingQueue<String> log) {
+			this.log = log;
+		}
+
+		@Override
+		public void onOpen(FakeGateway.Connection connection) throws IOException {
+			long interval = connection.getIndex() == 1 ? MAIN_HEARTBEAT_INTERVAL : STANDBY_HEARTBEAT_INTERVAL;
+			connection.send(new JSONObject().put("op", WebSocketCode.HELLO).put("d", new JSONObject().put("heartbeat_interval", interval)));
+		}
+
+		@Override
+		public void onMessage(FakeGateway.Connection connection, JSONObject message) throws IOException {
+			switch (message.getInt("op")) {
+				case WebSocketCode.HEARTBEAT:
+					this.log.add(connection.getIndex() + ":heartbeat:" + message.opt("d"));
+					connection.send(new JSONObject().put("op", WebSocketCode.HEARTBEAT_ACK));
+					break;
+				case WebSocketCode.IDENTIFY:
+					onIdentify(connection);
+					break;
+				case WebSocketCode.RESUME:
+					this.log.add(connection.getIndex() + ":resume:" + message.getJSONObject("d").opt("seq"));
+					onResume(connection);
+					break;
+				default:
+			}
+		}
+
+		abstract void onIdentify(FakeGateway.Connection connection) throws IOException;
+
+		void onResume(FakeGateway.Connection connection) throws IOException {
+		}
+	}
+}